@@ -0,0 +1,321 @@
+
+import edu.princeton.cs.algs4.Digraph;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An immutable digraph in compressed sparse row (CSR) form.
+ * 
+ * The vertices adjacent from v are target(k) for every k in
+ * [adjStart(v), adjEnd(v)), so the whole digraph is two int arrays: V + 1
+ * offsets and E targets, or 4 (V + 1) + 4 E bytes, against the linked bags
+ * of boxed Integers in a Digraph.
+ * 
+ * The arrays are either on the heap, copied from a Digraph, or in a file that
+ * is memory-mapped read-only, so that the digraph takes no heap at all and
+ * the operating system pages it in as it's used.
+ * 
+ * The file holds, as big-endian ints: V, E, the V + 1 offsets and the E
+ * targets. Each of the two arrays must fit in a single mapping, so V and E
+ * may each be at most about 2^29.
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class CompactDigraph {
+    private int V;              // The number of vertices
+    private int E;              // The number of edges
+    private IntBuffer offsets;  // Where each vertex's targets start; V + 1
+    private IntBuffer targets;  // The vertices adjacent from each vertex; E
+    private boolean mapped;     // Whether the arrays are in a mapped file
+    
+    /**
+     * Copies the given digraph into compact form on the heap.
+     * 
+     * The targets of each vertex keep the order of {@code G.adj(v)}.
+     * 
+     * @param G
+     * @throws NullPointerException if {@code G == null}
+     */
+    public CompactDigraph(Digraph G) {
+        if (G == null) throw new java.lang.NullPointerException();
+        V = G.V();
+        E = G.E();
+        int[] off = new int[V + 1];
+        int[] tgt = new int[E];
+        int k = 0;
+        for (int v = 0; v < V; v++) {
+            off[v] = k;
+            for (int w: G.adj(v)) tgt[k++] = w;
+        }
+        off[V] = k;
+        offsets = IntBuffer.wrap(off);
+        targets = IntBuffer.wrap(tgt);
+        mapped = false;
+    }
+    
+    /**
+     * Memory-maps the compact digraph in the given file, as written by
+     * {@code build}.
+     * 
+     * The file must not be modified while the digraph is in use.
+     * 
+     * @param file The name of the file
+     * @throws NullPointerException if {@code file == null}
+     * @throws IllegalArgumentException if the file can't be read, or is not a
+     *         compact digraph
+     */
+    public CompactDigraph(String file) {
+        if (file == null) throw new java.lang.NullPointerException();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel ch = raf.getChannel();
+            IntBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, 8)
+                                 .asIntBuffer();
+            V = header.get(0);
+            E = header.get(1);
+            if (V < 0 || E < 0 || ch.size() != 8 + 4L * (V + 1) + 4L * E)
+                throw new IllegalArgumentException(file);
+            offsets = ch.map(FileChannel.MapMode.READ_ONLY,
+                             8, 4L * (V + 1)).asIntBuffer();
+            targets = ch.map(FileChannel.MapMode.READ_ONLY,
+                             8 + 4L * (V + 1), 4L * E).asIntBuffer();
+            mapped = true;
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    /**
+     * Builds a compact digraph file from a WordNet hypernyms file, without
+     * holding the digraph on the heap.
+     * 
+     * Each line of the hypernyms file is a synset id followed by the ids of
+     * its hypernyms, separated by commas. The file is read three times: once
+     * to count the edges, once to count each vertex's edges into the mapped
+     * offsets, and once to write each edge into place.
+     * 
+     * The targets of each vertex end up in the order that {@code adj(v)} of
+     * a Digraph built from the same file would give, last edge first, so
+     * that SAP breaks ties between ancestors the same way over either.
+     * 
+     * @param hypernyms The name of the hypernyms file
+     * @param V The number of vertices
+     * @param file The name of the compact digraph file to write
+     * @throws NullPointerException if {@code hypernyms == null} or
+     *         {@code file == null}
+     * @throws IllegalArgumentException if the files can't be read or written,
+     *         or if any id in the hypernyms file is outside of the range
+     *         {@code [0, V - 1]}
+     */
+    public static void build(String hypernyms, int V, String file) {
+        if (hypernyms == null || file == null)
+            throw new java.lang.NullPointerException();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int E = edges(hypernyms, V, null, null);
+            FileChannel ch = raf.getChannel();
+            raf.setLength(0);
+            raf.setLength(8 + 4L * (V + 1) + 4L * E);
+            IntBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, 8)
+                                 .asIntBuffer();
+            header.put(0, V);
+            header.put(1, E);
+            IntBuffer off = ch.map(FileChannel.MapMode.READ_WRITE,
+                                   8, 4L * (V + 1)).asIntBuffer();
+            IntBuffer tgt = ch.map(FileChannel.MapMode.READ_WRITE,
+                                   8 + 4L * (V + 1), 4L * E).asIntBuffer();
+            
+            // Count each vertex's edges, so that a running sum turns the
+            // counts into where each vertex's targets end
+            edges(hypernyms, V, off, null);
+            int sum = 0;
+            for (int v = 0; v <= V; v++) {
+                sum += off.get(v);
+                off.put(v, sum);
+            }
+            
+            // Write each vertex's edges backwards from its end, so that its
+            // offset finishes where its targets start
+            edges(hypernyms, V, off, tgt);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    /**
+     * Reads every edge of a hypernyms file.
+     * 
+     * With no offsets, this only counts the edges. With offsets but no
+     * targets, it adds each edge to the count at offsets[v]. With both, it
+     * writes each edge v -> w to targets[--offsets[v]].
+     * 
+     * @param hypernyms The name of the hypernyms file
+     * @param V The number of vertices
+     * @param off The offsets, or {@code null}
+     * @param tgt The targets, or {@code null}
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if any id is outside of the range
+     *         {@code [0, V - 1]}
+     * @return the number of edges read
+     */
+    private static int edges(String hypernyms, int V, IntBuffer off,
+                             IntBuffer tgt) throws IOException {
+        int E = 0;
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(hypernyms), 1 << 16)) {
+            int v = -1;         // The synset of this line; -1 before it's read
+            int n = -1;         // The number being read; -1 before a digit
+            int c;
+            do {
+                c = in.read();
+                if (c >= '0' && c <= '9') {
+                    n = (n == -1 ? 0 : 10 * n) + (c - '0');
+                    continue;
+                }
+                if (n != -1) {
+                    if (n >= V) throw new IllegalArgumentException("id " + n);
+                    if (v == -1) v = n;
+                    else {
+                        E++;
+                        if (tgt != null) {
+                            int k = off.get(v) - 1;
+                            tgt.put(k, n);
+                            off.put(v, k);
+                        }
+                        else if (off != null) off.put(v, off.get(v) + 1);
+                    }
+                    n = -1;
+                }
+                if (c == '\n' || c == -1) v = -1;
+            } while (c != -1);
+        }
+        return E;
+    }
+    
+    /**
+     * Returns the number of vertices in this digraph.
+     * 
+     * @return the number of vertices in this digraph
+     */
+    public int V() {
+        return V;
+    }
+    
+    /**
+     * Returns the number of edges in this digraph.
+     * 
+     * @return the number of edges in this digraph
+     */
+    public int E() {
+        return E;
+    }
+    
+    /**
+     * The index of the first vertex adjacent from v, for use with target().
+     * 
+     * @param v The vertex
+     * @return the index of the first vertex adjacent from <em>v</em>
+     */
+    public int adjStart(int v) {
+        return offsets.get(v);
+    }
+    
+    /**
+     * One past the index of the last vertex adjacent from v.
+     * 
+     * @param v The vertex
+     * @return one past the index of the last vertex adjacent from <em>v</em>
+     */
+    public int adjEnd(int v) {
+        return offsets.get(v + 1);
+    }
+    
+    /**
+     * The adjacent vertex at the given index.
+     * 
+     * @param k An index in [adjStart(v), adjEnd(v)) for some vertex v
+     * @return the vertex at index <em>k</em>
+     */
+    public int target(int k) {
+        return targets.get(k);
+    }
+    
+    /**
+     * Returns the number of edges leaving v.
+     * 
+     * @param v The vertex
+     * @return the outdegree of <em>v</em>
+     */
+    public int outdegree(int v) {
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+    
+    /**
+     * Does this digraph have a directed cycle?
+     * 
+     * This repeatedly removes vertices with no remaining incoming edges
+     * (Kahn's algorithm), so that it needs no recursion however deep the
+     * digraph is; there is a cycle exactly when some vertex is never removed.
+     * It takes 8 V bytes of temporary heap.
+     * 
+     * @return {@code true} if this digraph has a directed cycle,
+     *         {@code false} otherwise
+     */
+    public boolean hasCycle() {
+        int[] indegree = new int[V];
+        for (int k = 0; k < E; k++) indegree[targets.get(k)]++;
+        
+        int[] queue = new int[V];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < V; v++) if (indegree[v] == 0) queue[tail++] = v;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = adjStart(v), end = adjEnd(v); k < end; k++) {
+                int w = targets.get(k);
+                if (--indegree[w] == 0) queue[tail++] = w;
+            }
+        }
+        return tail != V;
+    }
+    
+    /**
+     * The number of bytes of heap this digraph holds.
+     * 
+     * @return 4 (V + 1) + 4 E if the digraph is on the heap; 0 if mapped
+     */
+    public long heapBytes() {
+        return mapped ? 0 : 4L * (V + 1) + 4L * E;
+    }
+    
+    /**
+     * The number of bytes of memory-mapped file this digraph holds.
+     * 
+     * @return 8 + 4 (V + 1) + 4 E if the digraph is mapped; 0 if on the heap
+     */
+    public long mappedBytes() {
+        return mapped ? 8 + 4L * (V + 1) + 4L * E : 0;
+    }
+}
@@ -0,0 +1,204 @@
+
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks WordNet in large-graph mode on a synthetic taxonomy of 10M+ synsets
+ * within a fixed heap.
+ * 
+ * The taxonomy is written by TaxonomyGenerator one synset at a time, and then
+ * loaded through WordNet with its digraph, nouns and synset text all in
+ * memory-mapped files; the memory budget is reported before any query runs.
+ * 
+ * Each query then picks two random nouns, and compares distance(), sap() and
+ * distances() with a plain breadth-first search over the ancestors of each
+ * noun's synsets, run on a separately mapped copy of the digraph.
+ * 
+ * Usage: java -Xmx256m LargeTaxonomyCheck [vertices] [queries] [dir]
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class LargeTaxonomyCheck {
+    
+    // Not to be instantiated
+    private LargeTaxonomyCheck() { }
+    
+    /**
+     * A random noun of the taxonomy: one naming a single synset three times
+     * in four, and otherwise one naming up to ten.
+     * 
+     * @param V The number of synsets
+     * @return the noun
+     */
+    private static String noun(int V) {
+        int v = StdRandom.uniform(V);
+        if (StdRandom.uniform(4) == 0) return "s" + (v / 100);
+        return "n" + v;
+    }
+    
+    /**
+     * The synsets of the given noun, as TaxonomyGenerator names them.
+     * 
+     * @param noun
+     * @param V The number of synsets
+     * @return the synset ids of <em>noun</em>
+     */
+    private static Queue<Integer> synsets(String noun, int V) {
+        Queue<Integer> ids = new Queue<>();
+        int k = Integer.parseInt(noun.substring(1));
+        if (noun.charAt(0) == 'n') ids.enqueue(k);
+        else {
+            for (int v = 100 * k; v < 100 * k + 100 && v < V; v += 10) {
+                ids.enqueue(v);
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Distances from the given synsets to each of their ancestors, by a plain
+     * breadth-first search.
+     * 
+     * @param G The digraph
+     * @param S The synsets to search from
+     * @return the distance to every ancestor of <em>S</em>, keyed by synset
+     */
+    private static Map<Integer, Integer> bfs(CompactDigraph G,
+                                             Iterable<Integer> S) {
+        Map<Integer, Integer> d = new HashMap<>();
+        Queue<Integer> q = new Queue<>();
+        for (int s: S) {
+            if (!d.containsKey(s)) {
+                d.put(s, 0);
+                q.enqueue(s);
+            }
+        }
+        while (!q.isEmpty()) {
+            int v = q.dequeue();
+            for (int k = G.adjStart(v); k < G.adjEnd(v); k++) {
+                int w = G.target(k);
+                if (!d.containsKey(w)) {
+                    d.put(w, d.get(v) + 1);
+                    q.enqueue(w);
+                }
+            }
+        }
+        return d;
+    }
+    
+    /**
+     * The shortest ancestral path between the given distance maps.
+     * 
+     * @param dA The distances from one family
+     * @param dB The distances from the other family
+     * @return the length of the shortest ancestral path; -1 if none
+     */
+    private static int sap(Map<Integer, Integer> dA, Map<Integer, Integer> dB) {
+        int best = -1;
+        for (Map.Entry<Integer, Integer> e: dA.entrySet()) {
+            Integer b = dB.get(e.getKey());
+            if (b != null && (best == -1 || e.getValue() + b < best))
+                best = e.getValue() + b;
+        }
+        return best;
+    }
+    
+    /**
+     * Throws unless the given condition holds.
+     * 
+     * @param ok The condition
+     * @param what What was being checked
+     */
+    private static void expect(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException(what);
+    }
+    
+    public static void main(String[] args) {
+        int V = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String dir = args.length > 2 ? args[2]
+                                     : System.getProperty("java.io.tmpdir");
+        new File(dir).mkdirs();
+        String syn = dir + "/synsets.txt";
+        String hyp = dir + "/hypernyms.txt";
+        Runtime rt = Runtime.getRuntime();
+        
+        Stopwatch timer = new Stopwatch();
+        TaxonomyGenerator.write(V, 0, syn, hyp);
+        StdOut.printf("generated %d synsets: %.1f s\n", V, timer.elapsedTime());
+        
+        timer = new Stopwatch();
+        WordNet wn = new WordNet(syn, hyp, dir);
+        StdOut.printf("loaded in large-graph mode: %.1f s\n",
+                      timer.elapsedTime());
+        
+        // Report the memory budget up front
+        rt.gc();
+        long used = rt.totalMemory() - rt.freeMemory();
+        StdOut.printf("WordNet heap: %d MB (%.2f bytes/synset)\n",
+                      wn.heapBytes() >> 20, (double) wn.heapBytes() / V);
+        StdOut.printf("WordNet mapped: %d MB\n", wn.mappedBytes() >> 20);
+        StdOut.printf("JVM heap: %d MB used of %d MB max\n",
+                      used >> 20, rt.maxMemory() >> 20);
+        
+        // Check against a plain BFS over a separately mapped digraph
+        CompactDigraph G = new CompactDigraph(dir + "/hypernyms.csr");
+        StdRandom.setSeed(1);
+        timer = new Stopwatch();
+        for (int q = 0; q < queries; q++) {
+            String a = noun(V);
+            String b = noun(V);
+            Map<Integer, Integer> dA = bfs(G, synsets(a, V));
+            Map<Integer, Integer> dB = bfs(G, synsets(b, V));
+            int expected = sap(dA, dB);
+            
+            expect(wn.distance(a, b) == expected, "distance " + a + " " + b);
+            
+            // The ancestor must lie on a shortest ancestral path
+            String anc = wn.sap(a, b);
+            boolean onPath = false;
+            for (String n: anc.split(" ")) {
+                if (n.charAt(0) != 'n') continue;
+                int v = Integer.parseInt(n.substring(1));
+                onPath = dA.containsKey(v) && dB.containsKey(v) &&
+                         dA.get(v) + dB.get(v) == expected;
+            }
+            expect(onPath, "sap " + a + " " + b + ": " + anc);
+            
+            // Score a few more nouns against a at once
+            String[] bs = { b, noun(V), noun(V), a };
+            int[] ds = wn.distances(a, bs);
+            for (int i = 0; i < bs.length; i++) {
+                expect(ds[i] == sap(dA, bfs(G, synsets(bs[i], V))),
+                       "distances " + a + " " + bs[i]);
+            }
+        }
+        StdOut.printf("%d queries ok: %.1f s\n", queries, timer.elapsedTime());
+        
+        rt.gc();
+        used = rt.totalMemory() - rt.freeMemory();
+        StdOut.printf("JVM heap after queries: %d MB used\n", used >> 20);
+    }
+}
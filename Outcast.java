@@ -54,8 +54,8 @@ public class Outcast {
            int d = 0;
            
            // Note that when i = j, distance(i,j) = 0
-           for (int j = 0; j < nouns.length; j++) {
-               d += wordnet.distance(nouns[i], nouns[j]);
+           for (int dist: wordnet.distances(nouns[i], nouns)) {
+               d += dist;
            }
            
            // Keep track of the current furthest outlier
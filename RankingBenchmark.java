@@ -0,0 +1,85 @@
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Measures ranking one synset against many candidates, comparing a single
+ * call to lengths() with one call to length() per candidate.
+ * 
+ * The digraph is a synthetic taxonomy from TaxonomyGenerator. The first
+ * five rounds only warm up, so that the timed rounds run compiled code.
+ * 
+ * Usage: java RankingBenchmark [vertices] [candidates] [rounds]
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class RankingBenchmark {
+    
+    // Not to be instantiated
+    private RankingBenchmark() { }
+    
+    public static void main(String[] args) {
+        int V = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        
+        SAP sap = new SAP(TaxonomyGenerator.taxonomy(V, 0));
+        StdRandom.setSeed(1);
+        double totalMany = 0;
+        double totalEach = 0;
+        
+        for (int r = -5; r < rounds; r++) {
+            Queue<Integer> query = new Queue<>();
+            query.enqueue(StdRandom.uniform(V));
+            Queue<Queue<Integer>> candidates = new Queue<>();
+            for (int i = 0; i < n; i++) {
+                Queue<Integer> c = new Queue<>();
+                c.enqueue(StdRandom.uniform(V));
+                candidates.enqueue(c);
+            }
+            
+            Stopwatch timer = new Stopwatch();
+            int[] ls = sap.lengths(query, candidates);
+            double many = timer.elapsedTime();
+            
+            timer = new Stopwatch();
+            int i = 0;
+            for (Queue<Integer> c: candidates) {
+                if (sap.length(query, c) != ls[i++])
+                    throw new IllegalStateException("lengths != length");
+            }
+            double each = timer.elapsedTime();
+            
+            // Don't report the warm-up rounds
+            if (r < 0) continue;
+            totalMany += many;
+            totalEach += each;
+            StdOut.printf("round %2d: lengths %7.2f ms, length x %d %7.2f ms" +
+                          " (%.1fx)\n", r, 1e3 * many, n, 1e3 * each,
+                          each / many);
+        }
+        StdOut.printf("total:    lengths %7.2f ms, length x %d %7.2f ms" +
+                      " (%.1fx)\n", 1e3 * totalMany, n, 1e3 * totalEach,
+                      totalEach / totalMany);
+    }
+}
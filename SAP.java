@@ -1,8 +1,6 @@
 
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.Queue;
-import edu.princeton.cs.algs4.Stack;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 import java.util.Arrays;
@@ -29,12 +27,30 @@ import java.util.Arrays;
  * @author Michael <GrubenM@GMail.com>
  */
 public class SAP {
-    // The given digraph
-    private Digraph G;
+    // The given digraph, in compact form
+    private CompactDigraph G;
     
-    // For storing shortest paths
-    private int[] distToLeft;
-    private int[] distToRight;
+    /**
+     * For storing shortest paths, with both families packed side by side.
+     * 
+     * Adopt the convention that an "entry" is (2 * v) for vertex v in the V
+     * or "left" family, and (2 * v + 1) for vertex v in the W or "right"
+     * family, so that dist[e] is the distance to that entry, and (e ^ 1) is
+     * the same vertex in the other family.
+     * 
+     * dist is only meaningful for vertices whose stamp equals the current
+     * epoch; every other vertex is unvisited, whatever dist holds for it.
+     * 
+     * That is 10 bytes per vertex: the two ints of dist, which any search
+     * needs, and a short stamp, where an int stamp would take 12. A narrower
+     * stamp means clearing all of the stamps whenever the epoch runs out:
+     * with a short, that's a pass over 2 V bytes every 32767 queries, which
+     * is negligible; with a byte, it would be a pass over V bytes every 127
+     * queries, which on a large digraph costs more than the queries do.
+     */
+    private int[] dist;
+    private short[] stamp;
+    private int epoch;
     
     // The shortest path result of the BFS; Integer.MAX_VALUE if none
     private int sp;
@@ -42,11 +58,13 @@ public class SAP {
     // The common ancestor result of the BFS; -1 if none
     private int anc;
 
-    private Stack<Integer> marked;  // Stores which vertices have been marked
-    private Queue<Integer> vert;    // Stores the next vertices in BFS
-    private Queue<Boolean> fam;     // The "family" to which the vertex belongs
-                                    // true is the V or "left" family, and
-                                    // false is the W or "right" family.
+    private int[] vert;     // Stores the entries of the BFS, in visiting order
+    private int head;       // The next entry in vert to search from
+    private int tail;       // The next free slot in vert
+    
+    // The right distance of a vertex whose hypernyms upward() is still working
+    // through; meeting it again means the digraph has a cycle
+    private static final int ON_PATH = -2;
     
     /**
      * Constructor takes a digraph (not necessarily a DAG).
@@ -58,23 +76,107 @@ public class SAP {
         // check for null input
         if (G == null) throw new java.lang.NullPointerException();
         
+        /**
+         * Copy the given digraph, so that we can ask it for adjacent vertices.
+         * 
+         * A Digraph can still have edges added after we're constructed, so we
+         * must take a copy to keep our answers stable; we take it in compact
+         * form, which is much smaller than a Digraph copy.
+         */
+        init(new CompactDigraph(G));
+    }
+    
+    /**
+     * Constructor takes a compact digraph (not necessarily a DAG), such as a
+     * memory-mapped one for digraphs too large for the heap.
+     * 
+     * A compact digraph is immutable, so it is shared rather than copied, and
+     * this SAP only adds its search state to the heap.
+     * 
+     * @param G 
+     * @throws NullPointerException if {@code G == null}
+     */
+    public SAP(CompactDigraph G) {
+        // check for null input
+        if (G == null) throw new java.lang.NullPointerException();
+        init(G);
+    }
+    
+    /**
+     * Initialize the search state for the given digraph.
+     * 
+     * @param G The digraph to search, which is never modified
+     */
+    private void init(CompactDigraph G) {
+        this.G = G;
+        
         // Initialize our state variables
         sp = Integer.MAX_VALUE;
         anc = -1;
-        marked = new Stack<>();
-        vert = new Queue<>();
-        fam = new Queue<>();
         
-        // Copy the given digraph, so that we can ask it for adjacent vertices
-        this.G = new Digraph(G);
+        // Create an entry-indexed array to keep track of distances
+        dist = new int[2 * this.G.V()];
         
-        // Create a vertex-indexed array to keep track of distances and marking
-        distToLeft = new int[this.G.V()];
-        distToRight = new int[this.G.V()];
+        // Start the BFS queue small; visit() grows it to fit the entries that
+        // a BFS actually touches
+        vert = new int[16];
         
-        // Adopt the convention that -1 means that this vertex is unvisited
-        Arrays.fill(distToLeft, -1);
-        Arrays.fill(distToRight, -1);
+        // A fresh stamp array is all 0, so starting at 1 marks all unvisited
+        stamp = new short[this.G.V()];
+        epoch = 1;
+    }
+    
+    /**
+     * Distance to the given entry in the current BFS; -1 if unvisited.
+     * 
+     * @param e The entry, (2 * v) or (2 * v + 1) for vertex v
+     * @return the distance to <em>e</em>; {@code -1} if unvisited
+     */
+    private int distTo(int e) {
+        if (stamp[e >> 1] != epoch) return -1;
+        return dist[e];
+    }
+    
+    /**
+     * Mark the given entry as visited at the given distance, and enqueue it.
+     * 
+     * The first time a vertex is touched in a BFS, its stamp is brought up to
+     * the current epoch and both of its families are reset to unvisited, so
+     * that no vertex needs to be unwound after the BFS.
+     * 
+     * @param e The entry, (2 * v) or (2 * v + 1) for vertex v
+     * @param d The distance to <em>e</em>
+     */
+    private void visit(int e, int d) {
+        mark(e, d);
+        push(e);
+    }
+    
+    /**
+     * Mark the given entry as visited at the given distance, without
+     * enqueueing it.
+     * 
+     * @param e The entry, (2 * v) or (2 * v + 1) for vertex v
+     * @param d The distance to <em>e</em>
+     */
+    private void mark(int e, int d) {
+        int v = e >> 1;
+        if (stamp[v] != epoch) {
+            stamp[v] = (short) epoch;
+            dist[e ^ 1] = -1;
+        }
+        dist[e] = d;
+    }
+    
+    /**
+     * Append the given value to vert, growing it if needed.
+     * 
+     * @param x The entry, or the complement of an entry, to append
+     */
+    private void push(int x) {
+        // Grow the queue by doubling, as in a resizing array
+        if (tail == vert.length) vert = Arrays.copyOf(vert, 2 * vert.length);
+        vert[tail++] = x;
     }
     
     /**
@@ -105,119 +207,102 @@ public class SAP {
         
         // enqueue synsets from our left family to search; mark them as visited
         for (int v: V) {
-            vert.enqueue(v);
-            marked.push(v);
-            distToLeft[v] = 0;
-            fam.enqueue(true);
+            if (distTo(2 * v) == -1) visit(2 * v, 0);
         }
         
         // enqueue synsets from our right family to search; mark them as visited
         for (int w: W) {
             // Check for collision among the given synsets, prior to search
-            if (distToLeft[w] == 0) {
+            if (distTo(2 * w) == 0) {
                 sp = 0;
                 anc = w;
                 return;
             }
-            else {
-                vert.enqueue(w);
-                marked.push(w);
-                distToRight[w] = 0;
-                fam.enqueue(false);
+            else if (distTo(2 * w + 1) == -1) {
+                visit(2 * w + 1, 0);
             }
         }
         
+        this.search();
+    }
+    
+    /**
+     * Conduct a parallel breadth-first search between two single synsets, as
+     * {@code parallelBFS(V, W)} does for families, without boxing them into
+     * families first.
+     * 
+     * This method leaves the BFS state fields in a dirty state; each method
+     * that calls this method is responsible for cleaning the BFS itself.
+     * 
+     * @param v The synset ID of the left synset in the parallel BFS
+     * @param w The synset ID of the right synset in the parallel BFS
+     */
+    private void parallelBFS(int v, int w) {
+        visit(2 * v, 0);
+        
+        // Check for collision between the given synsets, prior to search
+        if (v == w) {
+            sp = 0;
+            anc = w;
+            return;
+        }
+        visit(2 * w + 1, 0);
+        
+        this.search();
+    }
+    
+    /**
+     * Run the parallel breadth-first search from the entries already queued
+     * in vert, recording the shortest ancestral path in sp and anc.
+     */
+    private void search() {
+        
         // conduct parallel BFS for shortest ancestral path
-        while (!vert.isEmpty()) {
-            int i = vert.dequeue();
-            boolean fromLeft = fam.dequeue();
-            for (int adj: G.adj(i)) {
-                if (fromLeft) {
-                    /**
-                     * If the distance from the left is non-negative, then we've
-                     * already visited this synset from the left, so we've found
-                     * a cycle, and we already know all the distances that we
-                     * will encounter if we continue this cycle any further.
-                     * 
-                     * Thus, we don't enqueue any additional synsets, and we
-                     * don't mark or update anything.
-                     */
-                    if (distToLeft[adj] > -1) continue;
-                    
-                    /**
-                     * We've collided, indicating a successful breadth-first
-                     * search.
-                     * 
-                     * Note that, if the Digraph contains cycles, we won't know
-                     * that we've found the shortest ancestral path until the
-                     * distance exceeds the length of the shortest ancestral
-                     * path found so far.
-                     * 
-                     * Accordingly, check distance against that length, and
-                     * return when distance exceeds that best length.
-                     * 
-                     * Save the state of the BFS in our instance variables, so
-                     * that individual methods can return from this state what
-                     * they want.
-                     */
-                    if (distToRight[adj] != -1 &&
-                        distToLeft[i] + 1 + distToRight[adj] < sp) {
-                            sp = distToLeft[i] + 1 + distToRight[adj];
-                            anc = adj;
-                    }
-                    
-                    vert.enqueue(adj);
-                    marked.push(adj);
-                    fam.enqueue(fromLeft);
-                    distToLeft[adj] = distToLeft[i] + 1;
-                    
-                    // Return early, if possible
-                    if (distToLeft[i] + 1 > sp) return;
-                }
-                    
-                else { //if (!fromLeft)
-                    /**
-                     * If the distance from the right is non-negative, then
-                     * we've already visited this synset from the right, so
-                     * we've found a cycle, and we already know all the
-                     * distances that we will encounter if we continue this
-                     * cycle any further.
-                     * 
-                     * Thus, we don't enqueue any additional synsets, and we
-                     * don't mark or update anything.
-                     */
-                    if (distToRight[adj] != -1) continue;
-                    
-                    /**
-                     * We've collided, indicating a successful breadth-first
-                     * search.
-                     * 
-                     * Note that, if the Digraph contains cycles, we won't know
-                     * that we've found the shortest ancestral path until the
-                     * distance exceeds the length of the shortest ancestral
-                     * path found so far.
-                     * 
-                     * Accordingly, check distance against that length, and
-                     * return when distance exceeds that best length.
-                     * 
-                     * Save the state of the BFS in our instance variables, so
-                     * that individual methods can return from this state what
-                     * they want.
-                     */
-                    if (distToLeft[adj] != -1 &&
-                        distToRight[i] + 1 + distToLeft[adj] < sp) {
-                            sp = distToRight[i] + 1 + distToLeft[adj];
-                            anc = adj;
-                    }
-                    
-                    vert.enqueue(adj);
-                    marked.push(adj);
-                    fam.enqueue(fromLeft);
-                    distToRight[adj] = distToRight[i] + 1;
-                    
-                    // Return early, if possible
-                    if (distToRight[i] + 1 > sp) return;
+        while (head < tail) {
+            int e = vert[head++];
+            int family = e & 1;
+            for (int k = G.adjStart(e >> 1); k < G.adjEnd(e >> 1); k++) {
+                int adj = G.target(k);
+                int next = 2 * adj + family;
+                
+                /**
+                 * If the distance from this family is non-negative, then
+                 * we've already visited this synset from this family, so
+                 * we've found a cycle, and we already know all the distances
+                 * that we will encounter if we continue this cycle any
+                 * further.
+                 * 
+                 * Thus, we don't enqueue any additional synsets, and we
+                 * don't mark or update anything.
+                 */
+                if (distTo(next) != -1) continue;
+                
+                /**
+                 * We've collided, indicating a successful breadth-first
+                 * search.
+                 * 
+                 * Note that, if the Digraph contains cycles, we won't know
+                 * that we've found the shortest ancestral path until the
+                 * distance exceeds the length of the shortest ancestral
+                 * path found so far.
+                 * 
+                 * Accordingly, check distance against that length, and
+                 * return when distance exceeds that best length.
+                 * 
+                 * Save the state of the BFS in our instance variables, so
+                 * that individual methods can return from this state what
+                 * they want.
+                 */
+                int other = distTo(next ^ 1);
+                if (other != -1 && dist[e] + 1 + other < sp) {
+                    sp = dist[e] + 1 + other;
+                    anc = adj;
                 }
+                
+                visit(next, dist[e] + 1);
+                
+                // Return early, if possible
+                if (dist[e] + 1 > sp) return;
             }
         }
         
@@ -225,7 +310,168 @@ public class SAP {
     }
     
     /**
-     * This method is used to unwind the results of a BFS.
+     * Conduct a complete breadth-first search from the given synsets, so that
+     * dist holds the distance from the left family to every one of its
+     * ancestors.
+     * 
+     * Unlike {@code parallelBFS}, this search never returns early, since the
+     * resulting distances are shared by every right family that is later
+     * searched against them with {@code upward} or {@code rightBFS}.
+     * 
+     * This method leaves the BFS state fields in a dirty state; each method
+     * that calls this method is responsible for cleaning the BFS itself.
+     * 
+     * @param V The synset IDs of the left synset family
+     */
+    private void leftBFS(Iterable<Integer> V) {
+        for (int v: V) {
+            if (distTo(2 * v) == -1) visit(2 * v, 0);
+        }
+        
+        while (head < tail) {
+            int e = vert[head++];
+            for (int k = G.adjStart(e >> 1); k < G.adjEnd(e >> 1); k++) {
+                int adj = G.target(k);
+                if (distTo(2 * adj) != -1) continue;
+                visit(2 * adj, dist[e] + 1);
+            }
+        }
+        
+        // The left entries are complete; free vert for the right families
+        head = 0;
+        tail = 0;
+    }
+    
+    /**
+     * The length of the shortest ancestral path between the left family and
+     * the given synset, using the distances already recorded by
+     * {@code leftBFS}; Integer.MAX_VALUE if none.
+     * 
+     * In a DAG, that length f(w) obeys
+     * 
+     *     f(w) = min(distance from the left family to w,
+     *                1 + f(p) for every hypernym p of w)
+     * 
+     * so we compute it with a depth-first search over the hypernyms of
+     * <em>w</em>, and memoize f in the right half of dist.
+     * 
+     * Since f only depends on the left family, the memo stays valid for every
+     * right family scored against the same left family, so each synset is
+     * only ever climbed through once, however many families share it.
+     * 
+     * vert is used as the stack of the search; a complemented entry marks a
+     * synset whose hypernyms are all done, so that we can compute its f.
+     * 
+     * @param w The synset ID of the right synset
+     * @return the length of the shortest ancestral path between the left
+     *         family and <em>w</em>; {@code Integer.MAX_VALUE} if none; and
+     *         {@code ON_PATH} if the search ran into a cycle, in which case f
+     *         is undefined and the state must be cleaned
+     */
+    private int upward(int w) {
+        int start = 2 * w + 1;
+        if (distTo(start) != -1) return dist[start];
+        
+        tail = 0;
+        push(start);
+        while (tail > 0) {
+            int e = vert[--tail];
+            
+            // All hypernyms of this synset are done, so compute its f
+            if (e < 0) {
+                e = ~e;
+                int best = distTo(e ^ 1);
+                if (best == -1) best = Integer.MAX_VALUE;
+                for (int k = G.adjStart(e >> 1); k < G.adjEnd(e >> 1); k++) {
+                    int adj = G.target(k);
+                    int f = dist[2 * adj + 1];
+                    if (f != Integer.MAX_VALUE && f + 1 < best) best = f + 1;
+                }
+                dist[e] = best;
+                continue;
+            }
+            
+            /**
+             * A synset still on the path has been reached from one of its
+             * own hyponyms, so we've found a cycle.
+             * 
+             * Otherwise, a synset that is already done was pushed a second
+             * time by another hyponym, so there's nothing left to do for it.
+             */
+            int d = distTo(e);
+            if (d == ON_PATH) return ON_PATH;
+            if (d != -1) continue;
+            
+            mark(e, ON_PATH);
+            push(~e);
+            for (int k = G.adjStart(e >> 1); k < G.adjEnd(e >> 1); k++) {
+                int adj = G.target(k);
+                int f = distTo(2 * adj + 1);
+                if (f == ON_PATH) return ON_PATH;
+                if (f == -1) push(2 * adj + 1);
+            }
+        }
+        return dist[start];
+    }
+    
+    /**
+     * Conduct a breadth-first search from the given synsets against the
+     * distances already recorded by {@code leftBFS}, and return the length of
+     * the shortest ancestral path found.
+     * 
+     * This is the fallback to {@code upward} for digraphs with cycles, where
+     * a synset's shortest ancestral path can't be built from its hypernyms'.
+     * 
+     * Since the left distances are complete, the first time we reach an
+     * ancestor of the left family we have a candidate path, and we can stop as
+     * soon as the distance from the right alone is no better than that
+     * candidate.
+     * 
+     * This method cleans up after itself: the right entries are unwound before
+     * it returns, but the left entries are left untouched for the next right
+     * family.
+     * 
+     * @param W The synset IDs of the right synset family
+     * @return the length of the shortest ancestral path between the left
+     *         family and <em>W</em>; {@code Integer.MAX_VALUE} if none
+     */
+    private int rightBFS(Iterable<Integer> W) {
+        int best = Integer.MAX_VALUE;
+        
+        for (int w: W) {
+            if (distTo(2 * w + 1) == -1) visit(2 * w + 1, 0);
+        }
+        
+        while (head < tail) {
+            int e = vert[head++];
+            
+            // Every synset left in the queue is at least this far away
+            if (dist[e] >= best) break;
+            
+            int left = distTo(e ^ 1);
+            if (left != -1 && dist[e] + left < best) best = dist[e] + left;
+            
+            for (int k = G.adjStart(e >> 1); k < G.adjEnd(e >> 1); k++) {
+                int adj = G.target(k);
+                if (distTo(2 * adj + 1) != -1) continue;
+                visit(2 * adj + 1, dist[e] + 1);
+            }
+        }
+        
+        /**
+         * Unwind only the right family, keeping the left distances for reuse.
+         * 
+         * The epoch can't do this for us, since it would also forget the left
+         * family; but vert holds exactly the right entries we touched.
+         */
+        for (int i = 0; i < tail; i++) dist[vert[i]] = -1;
+        head = 0;
+        tail = 0;
+        return best;
+    }
+    
+    /**
+     * This method is used to reset the state of a BFS.
      * 
      * This method should <b>always</b> be called before the method that called
      * {@code parallelBFS} returns.
@@ -235,19 +481,23 @@ public class SAP {
      */
     private void cleanBFS() {
         /** 
-         * Unmark all marked vertices to efficiently re-initialize.
+         * Advance the epoch to efficiently re-initialize.
+         * 
+         * This makes every vertex unvisited at once, without touching dist.
          * 
-         * This sets all entries in distToLeft and distToRight to -1.
+         * Should the epoch run out of the short stamps, clear them and start
+         * over at 1; this costs a single pass over the vertices every 32767
+         * queries.
          */
-        while (!marked.isEmpty()) {
-            int m = marked.pop();
-            distToLeft[m] = -1;
-            distToRight[m] = -1;
+        epoch++;
+        if (epoch > Short.MAX_VALUE) {
+            Arrays.fill(stamp, (short) 0);
+            epoch = 1;
         }
         
-        // Clear the queues of vertices, should they still have any
-        vert = new Queue<>();
-        fam = new Queue<>();
+        // Empty the queue of entries, should it still have any
+        head = 0;
+        tail = 0;
         
         // Set shortest path and ancestor to "none" code
         sp = Integer.MAX_VALUE;
@@ -267,13 +517,7 @@ public class SAP {
         if (v < 0 || v >= G.V() || w < 0 || w >= G.V())
             throw new java.lang.IndexOutOfBoundsException();
         
-        Queue<Integer> V = new Queue<>();
-        V.enqueue(v);
-        
-        Queue<Integer> W = new Queue<>();
-        W.enqueue(w);
-        
-        this.parallelBFS(V, W);
+        this.parallelBFS(v, w);
         
         // Grab state variable to return
         int ans = sp;
@@ -300,13 +544,7 @@ public class SAP {
         if (v < 0 || v >= G.V() || w < 0 || w >= G.V())
             throw new java.lang.IndexOutOfBoundsException();
         
-        Queue<Integer> V = new Queue<>();
-        V.enqueue(v);
-        
-        Queue<Integer> W = new Queue<>();
-        W.enqueue(w);
-        
-        this.parallelBFS(V, W);
+        this.parallelBFS(v, w);
         
         // Grab state variable to return
         int ans = anc;
@@ -379,6 +617,104 @@ public class SAP {
         return ans;
     }
     
+    /**
+     * Lengths of the shortest ancestral paths between any vertex in V and any
+     * vertex in each of the given families; -1 for a family with no such path.
+     * 
+     * This is equivalent to calling {@code length(V, W)} once for each family
+     * <em>W</em> in <em>Ws</em>, but the ancestors of <em>V</em> are only
+     * explored once, and in a DAG each synset above the families is only
+     * climbed through once, however many families share it.
+     * 
+     * @param V The iterable of the left synset family in the sap
+     * @param Ws The iterable of right synset families in the sap
+     * @throws NullPointerException if {@code V == null}
+     * @throws NullPointerException if {@code Ws == null}, or if any family in
+     *         <em>Ws</em> is {@code null}
+     * @throws IndexOutOfBoundsException if any vertex in <em>V</em> or in any
+     *         family in <em>Ws</em> is outside of the range
+     *         {@code [0, G.V() - 1)}
+     * @return the length of the shortest ancestral path between any vertex in
+     *         <em>V</em> and any vertex in each family in <em>Ws</em>, in the
+     *         order that <em>Ws</em> iterates; {@code -1} for a family with no
+     *         such path
+     */
+    public int[] lengths(Iterable<Integer> V,
+                         Iterable<? extends Iterable<Integer>> Ws) {
+        if (V == null || Ws == null) throw new java.lang.NullPointerException();
+        for (int v: V) if (v < 0 || v >= G.V())
+            throw new java.lang.IndexOutOfBoundsException();
+        int n = 0;
+        for (Iterable<Integer> W: Ws) {
+            if (W == null) throw new java.lang.NullPointerException();
+            for (int w: W) if (w < 0 || w >= G.V())
+                throw new java.lang.IndexOutOfBoundsException();
+            n++;
+        }
+        
+        // With no families to score, don't bother searching at all
+        if (n == 0) return new int[0];
+        
+        // Explore the ancestors of the left family once, for every family
+        this.leftBFS(V);
+        
+        // Score each family through the memoized upward search
+        int[] ans = new int[n];
+        int i = 0;
+        boolean cyclic = false;
+        for (Iterable<Integer> W: Ws) {
+            int d = Integer.MAX_VALUE;
+            for (int w: W) {
+                int f = this.upward(w);
+                if (f == ON_PATH) {
+                    cyclic = true;
+                    break;
+                }
+                if (f < d) d = f;
+            }
+            if (cyclic) break;
+            ans[i++] = d == Integer.MAX_VALUE ? -1 : d;
+        }
+        
+        // On a cycle, start over with a breadth-first search for every family
+        if (cyclic) {
+            this.cleanBFS();
+            this.leftBFS(V);
+            i = 0;
+            for (Iterable<Integer> W: Ws) {
+                int d = this.rightBFS(W);
+                ans[i++] = d == Integer.MAX_VALUE ? -1 : d;
+            }
+        }
+        
+        // Reset state
+        this.cleanBFS();
+        return ans;
+    }
+    
+    /**
+     * The number of bytes of heap currently held by this SAP: its search state,
+     * plus its digraph if that is on the heap.
+     * 
+     * Clients running over very large digraphs can check this, together with
+     * {@code mappedBytes()}, against their budget before querying.
+     * 
+     * @return the number of bytes of heap held by this SAP
+     */
+    public long heapBytes() {
+        return 4L * (dist.length + vert.length) + 2L * stamp.length
+               + G.heapBytes();
+    }
+    
+    /**
+     * The number of bytes of memory-mapped file held by this SAP's digraph.
+     * 
+     * @return the number of bytes mapped; 0 if the digraph is on the heap
+     */
+    public long mappedBytes() {
+        return G.mappedBytes();
+    }
+    
 
     // do unit testing of this class
     public static void main(String[] args) {
@@ -0,0 +1,202 @@
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Measures the per-query cost of SAP on short-distance pairs, where the
+ * setup and reset of each BFS weigh the most against the search itself.
+ * 
+ * The digraph is a heap-ordered binary tree, in which v -> (v - 1) / 2, so
+ * that v and v + 1 are usually only a few hops apart.
+ * 
+ * SAP is timed against a reference copy of its earlier reset path, in the
+ * same JVM and over the same compact digraph: one that records every vertex
+ * it marks on a stack and unwinds them after each query, and that searches
+ * from boxed queues of vertices and families.
+ * 
+ * Usage: java SAPBenchmark [vertices] [queries]
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class SAPBenchmark {
+    
+    // Not to be instantiated
+    private SAPBenchmark() { }
+    
+    /**
+     * SAP's length(v, w) as it was before the epoch stamps: distToLeft and
+     * distToRight are reset by popping every marked vertex off a stack after
+     * each query, and the search runs over boxed queues.
+     * 
+     * Only the digraph has changed, to the same compact one that SAP uses, so
+     * that the two differ only in their search state and its reset.
+     */
+    private static class MarkedStackSAP {
+        private CompactDigraph G;
+        private int[] distToLeft;
+        private int[] distToRight;
+        private int sp;
+        private int anc;
+        private Stack<Integer> marked;  // Stores the vertices marked so far
+        private Queue<Integer> vert;    // Stores the next vertices in BFS
+        private Queue<Boolean> fam;     // true for the V or "left" family
+        
+        MarkedStackSAP(CompactDigraph G) {
+            this.G = G;
+            sp = Integer.MAX_VALUE;
+            anc = -1;
+            marked = new Stack<>();
+            vert = new Queue<>();
+            fam = new Queue<>();
+            distToLeft = new int[G.V()];
+            distToRight = new int[G.V()];
+            Arrays.fill(distToLeft, -1);
+            Arrays.fill(distToRight, -1);
+        }
+        
+        private void parallelBFS(Iterable<Integer> V, Iterable<Integer> W) {
+            for (int v: V) {
+                vert.enqueue(v);
+                marked.push(v);
+                distToLeft[v] = 0;
+                fam.enqueue(true);
+            }
+            for (int w: W) {
+                if (distToLeft[w] == 0) {
+                    sp = 0;
+                    anc = w;
+                    return;
+                }
+                vert.enqueue(w);
+                marked.push(w);
+                distToRight[w] = 0;
+                fam.enqueue(false);
+            }
+            while (!vert.isEmpty()) {
+                int i = vert.dequeue();
+                boolean fromLeft = fam.dequeue();
+                int[] from = fromLeft ? distToLeft : distToRight;
+                int[] to = fromLeft ? distToRight : distToLeft;
+                for (int k = G.adjStart(i); k < G.adjEnd(i); k++) {
+                    int adj = G.target(k);
+                    if (from[adj] != -1) continue;
+                    if (to[adj] != -1 && from[i] + 1 + to[adj] < sp) {
+                        sp = from[i] + 1 + to[adj];
+                        anc = adj;
+                    }
+                    vert.enqueue(adj);
+                    marked.push(adj);
+                    fam.enqueue(fromLeft);
+                    from[adj] = from[i] + 1;
+                    if (from[i] + 1 > sp) return;
+                }
+            }
+        }
+        
+        private void cleanBFS() {
+            while (!marked.isEmpty()) {
+                int m = marked.pop();
+                distToLeft[m] = -1;
+                distToRight[m] = -1;
+            }
+            vert = new Queue<>();
+            fam = new Queue<>();
+            sp = Integer.MAX_VALUE;
+            anc = -1;
+        }
+        
+        int length(int v, int w) {
+            Queue<Integer> V = new Queue<>();
+            V.enqueue(v);
+            Queue<Integer> W = new Queue<>();
+            W.enqueue(w);
+            this.parallelBFS(V, W);
+            int ans = sp;
+            this.cleanBFS();
+            if (ans == Integer.MAX_VALUE) return -1;
+            else return ans;
+        }
+    }
+    
+    /**
+     * Runs the given number of random short-distance queries.
+     * 
+     * @param length The length(v, w) method to query
+     * @param V The number of vertices in the digraph
+     * @param queries The number of queries to run
+     * @return the sum of all lengths found, so that no query is optimized away
+     */
+    private static long run(IntBinaryOperator length, int V, int queries) {
+        long sum = 0;
+        for (int q = 0; q < queries; q++) {
+            int v = StdRandom.uniform(V - 1);
+            sum += length.applyAsInt(v, v + 1);
+        }
+        return sum;
+    }
+    
+    /**
+     * Times the given number of random short-distance queries, after as many
+     * again to warm up, and prints the result.
+     * 
+     * @param name The name to print
+     * @param length The length(v, w) method to query
+     * @param V The number of vertices in the digraph
+     * @param queries The number of queries to run
+     * @return the sum of all lengths found
+     */
+    private static long time(String name, IntBinaryOperator length, int V,
+                             int queries) {
+        // Warm up, so that we time compiled code
+        StdRandom.setSeed(0);
+        run(length, V, queries);
+        
+        StdRandom.setSeed(1);
+        Stopwatch timer = new Stopwatch();
+        long sum = run(length, V, queries);
+        double time = timer.elapsedTime();
+        StdOut.printf("%-13s %.3f s (%.3f us/query)\n",
+                      name + ":", time, 1e6 * time / queries);
+        return sum;
+    }
+    
+    public static void main(String[] args) {
+        int V = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        
+        Digraph G = new Digraph(V);
+        for (int v = 1; v < V; v++) G.addEdge(v, (v - 1) / 2);
+        CompactDigraph C = new CompactDigraph(G);
+        SAP sap = new SAP(C);
+        MarkedStackSAP ref = new MarkedStackSAP(C);
+        
+        StdOut.printf("%d vertices, %d queries\n", V, queries);
+        long sum = time("epoch", sap::length, V, queries);
+        long refSum = time("marked stack", ref::length, V, queries);
+        if (sum != refSum) throw new IllegalStateException("lengths differ");
+        StdOut.printf("mean length = %.3f\n", (double) sum / queries);
+    }
+}
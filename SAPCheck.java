@@ -0,0 +1,228 @@
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks SAP against an independent reference on random digraphs.
+ * 
+ * Half of the digraphs are DAGs and half may contain cycles. For random
+ * synset families V and W, length(V, W) and ancestor(V, W) are compared with
+ * a plain breadth-first search from each family, as are length(v, w) and
+ * ancestor(v, w) for single synsets, and lengths(V, Ws) is compared with
+ * length(V, W) for every family in Ws.
+ * 
+ * Finally, one SAP answers a full cycle of its epoch, to check that no stale
+ * search state survives the epoch wrapping around.
+ * 
+ * Usage: java SAPCheck [digraphs] [seed]
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class SAPCheck {
+    
+    // Not to be instantiated
+    private SAPCheck() { }
+    
+    /**
+     * Distances from the given synsets to every vertex, by a plain BFS.
+     * 
+     * @param G The digraph
+     * @param S The synsets to search from
+     * @return the vertex-indexed distances from <em>S</em>; -1 if unreachable
+     */
+    private static int[] bfs(Digraph G, Iterable<Integer> S) {
+        int[] d = new int[G.V()];
+        for (int v = 0; v < G.V(); v++) d[v] = -1;
+        Queue<Integer> q = new Queue<>();
+        for (int s: S) {
+            if (d[s] == -1) {
+                d[s] = 0;
+                q.enqueue(s);
+            }
+        }
+        while (!q.isEmpty()) {
+            int v = q.dequeue();
+            for (int w: G.adj(v)) {
+                if (d[w] == -1) {
+                    d[w] = d[v] + 1;
+                    q.enqueue(w);
+                }
+            }
+        }
+        return d;
+    }
+    
+    /**
+     * The family of just the given synset.
+     * 
+     * @param v The synset
+     * @return the family
+     */
+    private static Queue<Integer> single(int v) {
+        Queue<Integer> f = new Queue<>();
+        f.enqueue(v);
+        return f;
+    }
+    
+    /**
+     * A random family of one to three synsets.
+     * 
+     * @param V The number of vertices to choose from
+     * @return the family
+     */
+    private static Queue<Integer> family(int V) {
+        Queue<Integer> f = new Queue<>();
+        int n = 1 + StdRandom.uniform(3);
+        for (int i = 0; i < n; i++) f.enqueue(StdRandom.uniform(V));
+        return f;
+    }
+    
+    /**
+     * Checks SAP on the given digraph with the given number of queries.
+     * 
+     * @param G The digraph
+     * @param sap The SAP on <em>G</em>
+     * @param queries The number of left families to check
+     * @throws IllegalStateException on the first disagreement
+     */
+    private static void check(Digraph G, SAP sap, int queries) {
+        for (int q = 0; q < queries; q++) {
+            Queue<Integer> V = family(G.V());
+            int[] dV = bfs(G, V);
+            
+            // The single-synset forms, against the first synset of V
+            int v0 = V.peek();
+            int w0 = StdRandom.uniform(G.V());
+            int[] dv = bfs(G, single(v0));
+            int[] dw = bfs(G, single(w0));
+            int best = -1;
+            for (int x = 0; x < G.V(); x++) {
+                if (dv[x] == -1 || dw[x] == -1) continue;
+                if (best == -1 || dv[x] + dw[x] < best) best = dv[x] + dw[x];
+            }
+            if (sap.length(v0, w0) != best)
+                throw new IllegalStateException("length(v, w)");
+            int a = sap.ancestor(v0, w0);
+            if (best == -1 ? a != -1 : dv[a] + dw[a] != best)
+                throw new IllegalStateException("ancestor(v, w): " + a);
+            
+            Queue<Queue<Integer>> Ws = new Queue<>();
+            int n = StdRandom.uniform(8);
+            for (int i = 0; i < n; i++) Ws.enqueue(family(G.V()));
+            int[] ls = sap.lengths(V, Ws);
+            if (ls.length != n) throw new IllegalStateException("lengths");
+            
+            int i = 0;
+            for (Queue<Integer> W: Ws) {
+                int[] dW = bfs(G, W);
+                int expected = -1;
+                for (int v = 0; v < G.V(); v++) {
+                    if (dV[v] == -1 || dW[v] == -1) continue;
+                    if (expected == -1 || dV[v] + dW[v] < expected)
+                        expected = dV[v] + dW[v];
+                }
+                
+                int length = sap.length(V, W);
+                int ancestor = sap.ancestor(V, W);
+                if (length != expected)
+                    throw new IllegalStateException("length: " + length +
+                                                    " != " + expected);
+                if (ls[i++] != expected)
+                    throw new IllegalStateException("lengths: " + ls[i - 1] +
+                                                    " != " + expected);
+                if (expected == -1 ? ancestor != -1 :
+                    dV[ancestor] + dW[ancestor] != expected)
+                    throw new IllegalStateException("ancestor: " + ancestor);
+            }
+        }
+    }
+    
+    /**
+     * Checks that SAP forgets every vertex when its epoch wraps around.
+     * 
+     * SAP stamps each vertex it touches with the epoch of the search, and the
+     * epoch runs from 1 up to 32767 before starting over at 1. So stamp 1000
+     * leaves at epochs 1 through 1000, run a full cycle of searches that never
+     * touch them, and search from them again at an epoch they were stamped
+     * with; if the wrap left their stamps in place, one of them would still
+     * look visited at distance 0, and the search would report a path of 0.
+     * 
+     * @throws IllegalStateException if stale state survives the wrap
+     */
+    private static void wraparound() {
+        int M = 1000;
+        
+        // Leaves 1 to M and M + 1 under root 0; a separate edge to search on
+        Digraph G = new Digraph(M + 4);
+        for (int v = 1; v <= M + 1; v++) G.addEdge(v, 0);
+        G.addEdge(M + 2, M + 3);
+        SAP sap = new SAP(G);
+        
+        // The query at epoch j only stamps leaf j, with a distance of 0
+        for (int j = 1; j <= M; j++) {
+            if (sap.length(j, j) != 0)
+                throw new IllegalStateException("wraparound: leaf " + j);
+        }
+        
+        // Run the epoch through the rest of its cycle, and into the next, so
+        // that the next search is at an epoch that leaf M / 2 was stamped with
+        for (int q = M; q < 32767 + M / 2 - 1; q++) {
+            if (sap.length(M + 2, M + 3) != 1)
+                throw new IllegalStateException("wraparound: edge");
+        }
+        
+        // Leaf M + 1 is 2 away from every other leaf
+        Queue<Integer> V = new Queue<>();
+        V.enqueue(M + 1);
+        Queue<Integer> W = new Queue<>();
+        for (int j = 1; j <= M; j++) W.enqueue(j);
+        for (int t = 0; t < 3; t++) {
+            int length = sap.length(V, W);
+            if (length != 2)
+                throw new IllegalStateException("wraparound: " + length);
+        }
+    }
+    
+    public static void main(String[] args) {
+        int digraphs = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        StdRandom.setSeed(seed);
+        
+        for (int t = 0; t < digraphs; t++) {
+            int V = 2 + StdRandom.uniform(60);
+            boolean dag = t % 2 == 0;
+            Digraph G = new Digraph(V);
+            for (int v = 0; v < V; v++) {
+                int k = StdRandom.uniform(3);
+                for (int j = 0; j < k; j++) {
+                    if (!dag) G.addEdge(v, StdRandom.uniform(V));
+                    else if (v > 0) G.addEdge(v, StdRandom.uniform(v));
+                }
+            }
+            check(G, new SAP(G), 20);
+        }
+        StdOut.println(digraphs + " digraphs ok");
+        
+        wraparound();
+        StdOut.println("epoch wraparound ok");
+    }
+}
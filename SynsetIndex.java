@@ -0,0 +1,425 @@
+
+import edu.princeton.cs.algs4.Bag;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The nouns and synset text of a WordNet synsets file, kept in memory-mapped
+ * files rather than on the heap.
+ * 
+ * The synsets file itself is mapped read-only, and serves as the text: a
+ * synset's nouns are read straight out of its line. Next to it, an index
+ * file holds, as big-endian ints:
+ * 
+ *     V, N, T                     synset ids, noun occurrences, table slots
+ *     start[V]                    where each synset's nouns start in the
+ *                                 synsets file; -1 if the id is missing
+ *     slot[T]                     pairs of (synset id, noun start), or -1
+ * 
+ * The slots are an open-addressing hash table with linear probing, keyed by
+ * the bytes of each noun, holding one slot per occurrence of a noun, so that
+ * every synset of a noun is found by probing from the noun's hash until an
+ * empty slot. T is a power of two at least 2 N, so probes stay short.
+ * 
+ * The synsets file and the table must each fit in a single mapping, so the
+ * synsets file may be at most 2 GB, ids must be under 2^29, and N may be at
+ * most 2^26.
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class SynsetIndex {
+    private int V;              // One more than the largest synset id
+    private int N;              // The number of noun occurrences
+    private int T;              // The number of slots in the table
+    private ByteBuffer text;    // The mapped synsets file
+    private IntBuffer start;    // Where each synset's nouns start in text
+    private IntBuffer table;    // The slots, two ints each
+    private long bytes;         // The number of bytes mapped
+    
+    /**
+     * Builds the index of the given synsets file into the given index file,
+     * and maps both.
+     * 
+     * @param synsets The name of the synsets file
+     * @param index The name of the index file to write
+     * @throws NullPointerException if {@code synsets == null} or
+     *         {@code index == null}
+     * @throws IllegalArgumentException if the files can't be read or written,
+     *         or the synsets file is malformed
+     */
+    public SynsetIndex(String synsets, String index) {
+        if (synsets == null || index == null)
+            throw new java.lang.NullPointerException();
+        try (RandomAccessFile syn = new RandomAccessFile(synsets, "r");
+             RandomAccessFile idx = new RandomAccessFile(index, "rw")) {
+            if (syn.length() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("synsets file over 2 GB");
+            text = syn.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                        0, syn.length());
+            
+            // First pass: count the synset ids and noun occurrences
+            V = 0;
+            N = 0;
+            int p = skipBlank(0);
+            while (p < text.limit()) {
+                int id = readId(p);
+                if (id + 1 > V) V = id + 1;
+                p = skipId(p);
+                while (true) {
+                    N++;
+                    p = nounEnd(p);
+                    if (p >= text.limit() || text.get(p) != ' ') break;
+                    p++;
+                }
+                p = skipBlank(lineEnd(p));
+            }
+            if (N > 1 << 26)
+                throw new IllegalArgumentException("over 2^26 nouns");
+            T = 2;
+            while (T < 2 * N) T *= 2;
+            
+            // Map the index file, and mark every synset and slot as empty
+            FileChannel ch = idx.getChannel();
+            idx.setLength(0);
+            idx.setLength(12 + 4L * V + 8L * T);
+            IntBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, 12)
+                                 .asIntBuffer();
+            header.put(0, V);
+            header.put(1, N);
+            header.put(2, T);
+            start = ch.map(FileChannel.MapMode.READ_WRITE,
+                           12, 4L * V).asIntBuffer();
+            table = ch.map(FileChannel.MapMode.READ_WRITE,
+                           12 + 4L * V, 8L * T).asIntBuffer();
+            for (int v = 0; v < V; v++) start.put(v, -1);
+            for (int s = 0; s < T; s++) table.put(2 * s, -1);
+            bytes = text.limit() + 12 + 4L * V + 8L * T;
+            
+            // Second pass: record each synset, and insert each noun
+            p = skipBlank(0);
+            while (p < text.limit()) {
+                int id = readId(p);
+                p = skipId(p);
+                start.put(id, p);
+                while (true) {
+                    int s = hash(p, nounEnd(p) - p) & (T - 1);
+                    while (table.get(2 * s) != -1) s = (s + 1) & (T - 1);
+                    table.put(2 * s, id);
+                    table.put(2 * s + 1, p);
+                    p = nounEnd(p);
+                    if (p >= text.limit() || text.get(p) != ' ') break;
+                    p++;
+                }
+                p = skipBlank(lineEnd(p));
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    /**
+     * Reads the synset id at the start of the line at p.
+     * 
+     * @param p The start of a line
+     * @throws IllegalArgumentException if the line doesn't start with an id
+     * @return the synset id
+     */
+    private int readId(int p) {
+        int id = 0;
+        int q = p;
+        while (q < text.limit() && text.get(q) >= '0' && text.get(q) <= '9') {
+            id = 10 * id + (text.get(q) - '0');
+            q++;
+            
+            // The start of every id must fit in a single mapping
+            if (id >= 1 << 29)
+                throw new IllegalArgumentException("synset id at byte " + p);
+        }
+        if (q == p || q >= text.limit() || text.get(q) != ',')
+            throw new IllegalArgumentException("synset line at byte " + p);
+        return id;
+    }
+    
+    /**
+     * Skips past the synset id and its comma at the start of the line at p.
+     * 
+     * @param p The start of a line
+     * @return the start of the line's first noun
+     */
+    private int skipId(int p) {
+        while (text.get(p) != ',') p++;
+        return p + 1;
+    }
+    
+    /**
+     * Does the given byte end a noun?
+     * 
+     * @param b The byte
+     * @return {@code true} if <em>b</em> is a space, comma or line break
+     */
+    private static boolean ends(byte b) {
+        return b == ' ' || b == ',' || b == '\n' || b == '\r';
+    }
+    
+    /**
+     * Finds the end of the noun at p.
+     * 
+     * @param p The start of a noun
+     * @return the position of the byte after the noun; the end of the text if
+     *         there is none
+     */
+    private int nounEnd(int p) {
+        while (p < text.limit() && !ends(text.get(p))) p++;
+        return p;
+    }
+    
+    /**
+     * Skips any line breaks at p, so that blank lines are ignored.
+     * 
+     * @param p A position in the text, or past its end
+     * @return the first position at or after <em>p</em> that isn't a line
+     *         break
+     */
+    private int skipBlank(int p) {
+        while (p < text.limit()) {
+            byte b = text.get(p);
+            if (b != '\n' && b != '\r') break;
+            p++;
+        }
+        return p;
+    }
+    
+    /**
+     * Finds the start of the next line.
+     * 
+     * @param p A position within a line
+     * @return the position after the line's newline; the end of the text if
+     *         there is none
+     */
+    private int lineEnd(int p) {
+        while (p < text.limit() && text.get(p) != '\n') p++;
+        return p + 1;
+    }
+    
+    /**
+     * The FNV-1a hash of the given bytes of the text.
+     * 
+     * @param p The start of the bytes
+     * @param n The number of bytes
+     * @return the hash
+     */
+    private int hash(int p, int n) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < n; i++) {
+            h ^= text.get(p + i) & 0xff;
+            h *= 0x01000193;
+        }
+        return h;
+    }
+    
+    /**
+     * The FNV-1a hash of the given bytes.
+     * 
+     * @param b The bytes
+     * @return the hash
+     */
+    private static int hash(byte[] b) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < b.length; i++) {
+            h ^= b[i] & 0xff;
+            h *= 0x01000193;
+        }
+        return h;
+    }
+    
+    /**
+     * Is the noun at p in the text exactly the given bytes?
+     * 
+     * @param p The start of a noun in the text
+     * @param b The bytes of the noun to compare with
+     * @return {@code true} if they are the same noun
+     */
+    private boolean matches(int p, byte[] b) {
+        if (p + b.length > text.limit()) return false;
+        for (int i = 0; i < b.length; i++) {
+            if (text.get(p + i) != b[i]) return false;
+        }
+        return p + b.length == text.limit() || ends(text.get(p + b.length));
+    }
+    
+    /**
+     * The slot at which probing for the given noun starts.
+     * 
+     * @param b The bytes of the noun
+     * @return the home slot of the noun
+     */
+    private int home(byte[] b) {
+        return hash(b) & (T - 1);
+    }
+    
+    /**
+     * Returns the number of synset ids; one more than the largest id.
+     * 
+     * @return the number of synset ids
+     */
+    public int V() {
+        return V;
+    }
+    
+    /**
+     * Did the given id appear in the synsets file?
+     * 
+     * @param id The synset id
+     * @return {@code true} if <em>id</em> is a synset, {@code false} otherwise
+     */
+    public boolean isSynset(int id) {
+        return id >= 0 && id < V && start.get(id) != -1;
+    }
+    
+    /**
+     * Is the given word a noun of any synset?
+     * 
+     * @param word
+     * @return {@code true} if <em>word</em> is a noun, {@code false} otherwise
+     */
+    public boolean contains(String word) {
+        byte[] b = word.getBytes(StandardCharsets.UTF_8);
+        for (int s = home(b); table.get(2 * s) != -1; s = (s + 1) & (T - 1)) {
+            if (matches(table.get(2 * s + 1), b)) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * The synset ids of the given noun.
+     * 
+     * @param word
+     * @return the synset ids of <em>word</em>; empty if it's not a noun
+     */
+    public Bag<Integer> synsets(String word) {
+        byte[] b = word.getBytes(StandardCharsets.UTF_8);
+        Bag<Integer> ids = new Bag<>();
+        for (int s = home(b); table.get(2 * s) != -1; s = (s + 1) & (T - 1)) {
+            if (matches(table.get(2 * s + 1), b)) ids.add(table.get(2 * s));
+        }
+        return ids;
+    }
+    
+    /**
+     * The nouns of the given synset, separated by spaces, as in the second
+     * field of the synsets file.
+     * 
+     * @param id The synset id
+     * @return the nouns of synset <em>id</em>; {@code null} if it isn't one
+     */
+    public String nouns(int id) {
+        if (!isSynset(id)) return null;
+        int p = start.get(id);
+        int q = p;
+        while (q < text.limit() && text.get(q) != ','
+               && text.get(q) != '\n' && text.get(q) != '\r') q++;
+        byte[] b = new byte[q - p];
+        for (int i = 0; i < b.length; i++) b[i] = text.get(p + i);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns every distinct noun, each once, in the order they first appear
+     * in the synsets file.
+     * 
+     * The nouns are read lazily from the mapped files, so iterating takes no
+     * more than constant heap beyond the nouns themselves.
+     * 
+     * @return all nouns
+     */
+    public Iterable<String> nouns() {
+        return new Iterable<String>() {
+            public Iterator<String> iterator() {
+                return new NounIterator();
+            }
+        };
+    }
+    
+    /**
+     * Iterates over the noun occurrences of the text in order, and returns
+     * each one that is the first occurrence of its noun.
+     * 
+     * With linear probing, a later occurrence of a noun is always inserted
+     * further along the probe sequence than an earlier one, so an occurrence
+     * is the first exactly when it is the first match in its probe sequence.
+     */
+    private class NounIterator implements Iterator<String> {
+        private int p;          // The start of the next occurrence to consider
+        private String next;    // The next noun to return; null if unknown
+        
+        public NounIterator() {
+            p = skipBlank(0);
+            if (p < text.limit()) p = skipId(p);
+        }
+        
+        public boolean hasNext() {
+            while (next == null && p < text.limit()) {
+                int q = nounEnd(p);
+                byte[] b = new byte[q - p];
+                for (int i = 0; i < b.length; i++) b[i] = text.get(p + i);
+                int s = home(b);
+                while (!matches(table.get(2 * s + 1), b)) s = (s + 1) & (T - 1);
+                if (table.get(2 * s + 1) == p)
+                    next = new String(b, StandardCharsets.UTF_8);
+                
+                // Move on to the next noun, or the next line's first noun
+                if (q < text.limit() && text.get(q) == ' ') p = q + 1;
+                else {
+                    p = skipBlank(lineEnd(q));
+                    if (p < text.limit()) p = skipId(p);
+                }
+            }
+            return next != null;
+        }
+        
+        public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String s = next;
+            next = null;
+            return s;
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * The number of bytes of memory-mapped file this index holds, including
+     * the synsets file itself.
+     * 
+     * @return the number of bytes mapped
+     */
+    public long mappedBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.Out;
+import edu.princeton.cs.algs4.StdRandom;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Generates synthetic taxonomies, for exercising WordNet and SAP at sizes far
+ * beyond the real WordNet.
+ * 
+ * Synset 0 is the root. Every other synset v has a hypernym chosen uniformly
+ * from the synsets before it, and one time in eight a second such hypernym,
+ * so that the result is always a rooted DAG with about 1.125 V edges.
+ * 
+ * Every synset v has the noun "n" + v. Every tenth synset also has the noun
+ * "s" + (v / 100), so that those nouns each name up to ten synsets.
+ * 
+ * Usage: java TaxonomyGenerator vertices synsets.txt hypernyms.txt [seed]
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class TaxonomyGenerator {
+    
+    // Not to be instantiated
+    private TaxonomyGenerator() { }
+    
+    /**
+     * Chooses the hypernyms of synset v, continuing the random sequence of
+     * the synsets before it.
+     * 
+     * @param v The synset, at least 1
+     * @param hyp Where to store the hypernyms; at least two long
+     * @return the number of hypernyms stored
+     */
+    private static int hypernyms(int v, int[] hyp) {
+        int n = 0;
+        hyp[n++] = StdRandom.uniform(v);
+        
+        // Occasionally give the synset a second hypernym
+        if (v > 1 && StdRandom.uniform(8) == 0) {
+            int q = StdRandom.uniform(v);
+            if (q != hyp[0]) hyp[n++] = q;
+        }
+        return n;
+    }
+    
+    /**
+     * Returns the nouns of synset v, as in the second field of synsets.txt.
+     * 
+     * @param v The synset
+     * @return the nouns of synset <em>v</em>
+     */
+    public static String nouns(int v) {
+        if (v % 10 == 0) return "n" + v + " s" + (v / 100);
+        return "n" + v;
+    }
+    
+    /**
+     * Returns a random synthetic taxonomy with the given number of synsets.
+     * 
+     * @param V The number of synsets
+     * @param seed The seed for the random choice of hypernyms
+     * @throws IllegalArgumentException if {@code V < 1}
+     * @return a rooted DAG on <em>V</em> vertices, rooted at 0
+     */
+    public static Digraph taxonomy(int V, long seed) {
+        if (V < 1) throw new IllegalArgumentException();
+        StdRandom.setSeed(seed);
+        Digraph G = new Digraph(V);
+        int[] hyp = new int[2];
+        for (int v = 1; v < V; v++) {
+            int n = hypernyms(v, hyp);
+            for (int i = 0; i < n; i++) G.addEdge(v, hyp[i]);
+        }
+        return G;
+    }
+    
+    /**
+     * Writes the same taxonomy as {@code taxonomy(V, seed)} as a synsets file
+     * and a hypernyms file, one synset at a time, so that the taxonomy is
+     * never held on the heap.
+     * 
+     * @param V The number of synsets
+     * @param seed The seed for the random choice of hypernyms
+     * @param synsets The name of the synsets file to write
+     * @param hypernyms The name of the hypernyms file to write
+     * @throws IllegalArgumentException if {@code V < 1}
+     */
+    public static void write(int V, long seed, String synsets,
+                             String hypernyms) {
+        if (V < 1) throw new IllegalArgumentException();
+        Out synOut = new Out(synsets);
+        for (int v = 0; v < V; v++) {
+            synOut.println(v + "," + nouns(v) + ",synthetic synset " + v);
+        }
+        synOut.close();
+        
+        StdRandom.setSeed(seed);
+        Out hypOut = new Out(hypernyms);
+        int[] hyp = new int[2];
+        for (int v = 1; v < V; v++) {
+            StringBuilder line = new StringBuilder();
+            line.append(v);
+            int n = hypernyms(v, hyp);
+            for (int i = 0; i < n; i++) line.append(',').append(hyp[i]);
+            hypOut.println(line.toString());
+        }
+        hypOut.close();
+    }
+    
+    public static void main(String[] args) {
+        int V = Integer.parseInt(args[0]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        write(V, seed, args[1], args[2]);
+    }
+}
@@ -3,12 +3,11 @@ import edu.princeton.cs.algs4.Bag;
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.DirectedCycle;
 import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.RedBlackBST;
-import edu.princeton.cs.algs4.ST;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
 
 /*
  * Copyright (C) 2017 Michael <GrubenM@GMail.com>
@@ -33,23 +32,20 @@ import java.util.TreeSet;
  */
 public class WordNet {
     
-    // A lookup for nouns, both to check existence and to get their synset ids
+    // A lookup for nouns, both to check existence and to get their synset ids;
+    // its keys are also the iterable of all nouns seen
     private RedBlackBST<String, Bag<Integer>> nouns;
     
-    // An iterable of all nouns seen; also helps to correctly handle RedBlackBST
-    private Set<String> allNouns;
-    
-    // The digraph for use in SAP
-    private Digraph G;
-    
-    // Client program to check for cycles
-    private DirectedCycle dc;
-    
-    // The SAP for running shortest-ancestral path queries
+    // The SAP for running shortest-ancestral path queries; it keeps the only
+    // copy of the digraph once construction is done
     private SAP sap;
     
-    // The synset lookup table
-    private ST<Integer, String> synMap;
+    // The synset lookup table, indexed by synset id
+    private String[] synMap;
+    
+    // In large-graph mode, the memory-mapped nouns and synset text, which take
+    // the place of nouns and synMap; null otherwise
+    private SynsetIndex index;
     
     /**
      * Takes the name of the two input files, and constructs a WordNet.
@@ -77,8 +73,7 @@ public class WordNet {
         
         // Initialize instance variables
         nouns = new RedBlackBST<>();
-        allNouns = new TreeSet<>();
-        synMap = new ST<>();
+        synMap = new String[1];
         
         // Handle the given files
         In synIn = new In(synsets);
@@ -98,22 +93,28 @@ public class WordNet {
              */
             String[] l = synIn.readLine().split(",");
             id = Integer.parseInt(l[0]);
-            synMap.put(id, l[1]);
+            
+            // Grow the lookup table by doubling, as in a resizing array
+            if (id >= synMap.length)
+                synMap = Arrays.copyOf(synMap,
+                                       Math.max(id + 1, 2 * synMap.length));
+            synMap[id] = l[1];
             for (String noun: l[1].split(" ")) {
-                boolean isNewAdd = allNouns.add(noun);
-                if (isNewAdd) {
-                    Bag<Integer> b = new Bag<>();
-                    b.add(id);
+                Bag<Integer> b = nouns.get(noun);
+                if (b == null) {
+                    b = new Bag<>();
                     nouns.put(noun, b);
                 }
-                else {
-                    nouns.get(noun).add(id);
-                }
+                b.add(id);
             }
         }
         
-        // Initialize our vertex-indexed digraph
-        G = new Digraph(id+1);
+        // Trim the lookup table down to the number of synsets seen
+        synMap = Arrays.copyOf(synMap, id+1);
+        
+        // Initialize our vertex-indexed digraph; this is only needed until the
+        // SAP has taken its own copy, so that we don't hold two copies of it
+        Digraph G = new Digraph(id+1);
         
         // Parse the hypernyms file
         while (hypIn.hasNextLine()) {
@@ -125,35 +126,115 @@ public class WordNet {
         }
         
         // Check for a cycle (i.e., input is not a DAG)
-        dc = new DirectedCycle(G);
+        DirectedCycle dc = new DirectedCycle(G);
         if (dc.hasCycle()) throw new IllegalArgumentException();
         
-        // Check for multiple roots
+        // Check for multiple roots, visiting each synset only once; ids that
+        // never appeared in the synsets file aren't synsets, so can't be roots
         int root = 0;
-        for (String noun: allNouns) {
-            for (int syn: nouns.get(noun)) {
-                int c = 0;
-                for (int adj: G.adj(syn)) {
-                    c++;
-                }
-                if (c == 0) {
-                    root++;
-                    if (root > 1) throw new IllegalArgumentException();
-                }
+        for (int syn = 0; syn < G.V(); syn++) {
+            if (synMap[syn] != null && G.outdegree(syn) == 0) {
+                root++;
+                if (root > 1) throw new IllegalArgumentException();
             }
         }
         
         // Initialize the SAP data structure
         sap = new SAP(G);
     }
+    
+    /**
+     * Takes the name of the two input files, and constructs a WordNet in
+     * large-graph mode, for taxonomies too large for the heap.
+     * 
+     * The digraph, the nouns and the synset text are all kept in
+     * memory-mapped files: the synsets file itself, plus an index and a
+     * compact digraph that are built into the given directory, overwriting
+     * any from an earlier run. Only SAP's search state, about 10 bytes per
+     * synset, is kept on the heap, along with 8 bytes per synset for the
+     * duration of the cycle check.
+     * 
+     * Queries return the same answers as in the default mode, except that
+     * {@code nouns()} iterates in the order of the synsets file rather than
+     * in sorted order.
+     * 
+     * @param synsets The name of the input file containing synsets
+     * @param hypernyms The name of the input file containing hypernyms
+     * @param dir The name of the directory in which to build the index files
+     * @throws NullPointerException if {@code synsets == null}
+     * @throws NullPointerException if {@code hypernyms == null}
+     * @throws NullPointerException if {@code dir == null}
+     * @throws IllegalArgumentException if the input does not correspond to a
+     *         rooted DAG, or the files can't be read or written
+     */
+    public WordNet(String synsets, String hypernyms, String dir) {
+        
+        // Check for invalid input
+        if (synsets == null || hypernyms == null || dir == null)
+            throw new java.lang.NullPointerException();
+        
+        // Index the nouns and text of the synsets file, in place
+        index = new SynsetIndex(synsets, dir + "/synsets.idx");
+        
+        // Build and map the digraph, without holding it on the heap
+        String csr = dir + "/hypernyms.csr";
+        CompactDigraph.build(hypernyms, index.V(), csr);
+        CompactDigraph G = new CompactDigraph(csr);
+        
+        // Check for a cycle (i.e., input is not a DAG)
+        if (G.hasCycle()) throw new IllegalArgumentException();
+        
+        // Check for multiple roots, visiting each synset only once
+        int root = 0;
+        for (int syn = 0; syn < G.V(); syn++) {
+            if (index.isSynset(syn) && G.outdegree(syn) == 0) {
+                root++;
+                if (root > 1) throw new IllegalArgumentException();
+            }
+        }
+        
+        // Initialize the SAP data structure, sharing the mapped digraph
+        sap = new SAP(G);
+    }
+    
+    /**
+     * The synset ids of the given WordNet noun.
+     * 
+     * @param noun
+     * @return the synset ids of <em>noun</em>
+     */
+    private Iterable<Integer> synsetsOf(String noun) {
+        if (index != null) return index.synsets(noun);
+        return nouns.get(noun);
+    }
+    
+    /**
+     * The nouns of the given synset (second field of synsets.txt).
+     * 
+     * @param id The synset id
+     * @return the nouns of synset <em>id</em>
+     */
+    private String synsetOf(int id) {
+        if (index != null) return index.nouns(id);
+        return synMap[id];
+    }
 
     /**
      * Returns all WordNet nouns.
      * 
+     * The nouns are only held once, as the keys of the noun lookup, so each
+     * call collects them afresh into a new iterable, in sorted order; this
+     * takes time and temporary memory proportional to the number of nouns.
+     * Clients iterating many times should iterate once and keep the result.
+     * 
+     * In large-graph mode, the nouns are instead read lazily from the mapped
+     * files, in the order of the synsets file, without collecting them.
+     * 
      * @return all WordNet nouns
      */
     public Iterable<String> nouns() {
-        return allNouns;
+        if (index != null) return index.nouns();
+        return nouns.keys();
     }
 
     /**
@@ -166,6 +247,7 @@ public class WordNet {
      */
     public boolean isNoun(String word) {
         if (word == null) throw new java.lang.NullPointerException();
+        if (index != null) return index.contains(word);
         return nouns.contains(word);
     }
 
@@ -188,9 +270,39 @@ public class WordNet {
             throw new java.lang.NullPointerException();
         if (!isNoun(nounA) || !isNoun(nounB))
             throw new IllegalArgumentException();
-        return sap.length(nouns.get(nounA), nouns.get(nounB));
+        return sap.length(synsetsOf(nounA), synsetsOf(nounB));
     }
 
+    /**
+     * Distances between nounA and each of nounsB.
+     * 
+     * This returns the same values as calling {@code distance(nounA, nounB)}
+     * for each nounB in <em>nounsB</em>, but the hypernyms of <em>nounA</em>
+     * are only searched once, which makes ranking many candidates against a
+     * single noun much cheaper.
+     * 
+     * @param nounA
+     * @param nounsB
+     * @throws NullPointerException if {@code nounA == null}
+     * @throws NullPointerException if {@code nounsB == null}, or if any noun
+     *         in <em>nounsB</em> is {@code null}
+     * @throws IllegalArgumentException if <em>nounA</em> or any noun in
+     *         <em>nounsB</em> is not a WordNet noun
+     * @return the distance between <em>nounA</em> and each noun in
+     *         <em>nounsB</em>, in the same order as <em>nounsB</em>
+     */
+    public int[] distances(String nounA, String[] nounsB) {
+        if (nounA == null || nounsB == null)
+            throw new java.lang.NullPointerException();
+        if (!isNoun(nounA)) throw new IllegalArgumentException();
+        Queue<Iterable<Integer>> synsB = new Queue<>();
+        for (String nounB: nounsB) {
+            if (!isNoun(nounB)) throw new IllegalArgumentException();
+            synsB.enqueue(synsetsOf(nounB));
+        }
+        return sap.lengths(synsetsOf(nounA), synsB);
+    }
+    
     /**
      * A synset (second field of synsets.txt) that is the common ancestor of
      * nounA and nounB in a shortest ancestral path.
@@ -213,7 +325,31 @@ public class WordNet {
             throw new java.lang.NullPointerException();
         if (!isNoun(nounA) || !isNoun(nounB))
             throw new IllegalArgumentException();
-        return synMap.get(sap.ancestor(nouns.get(nounA), nouns.get(nounB)));
+        return synsetOf(sap.ancestor(synsetsOf(nounA), synsetsOf(nounB)));
+    }
+    
+    /**
+     * The number of bytes of heap held by this WordNet's SAP: its search state,
+     * plus its digraph if that is on the heap.
+     * 
+     * In large-graph mode, this is all the heap that scales with the size of
+     * the taxonomy. In the default mode, the noun lookup and synset text are
+     * on the heap as well, and are not counted.
+     * 
+     * @return the number of bytes of heap held by the SAP
+     */
+    public long heapBytes() {
+        return sap.heapBytes();
+    }
+    
+    /**
+     * The number of bytes of memory-mapped files held by this WordNet.
+     * 
+     * @return the number of bytes mapped; 0 in the default mode
+     */
+    public long mappedBytes() {
+        if (index == null) return sap.mappedBytes();
+        return sap.mappedBytes() + index.mappedBytes();
     }
             
     // do unit testing of this class
@@ -0,0 +1,177 @@
+
+import edu.princeton.cs.algs4.Out;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+ * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks WordNet construction and queries on small hand-written taxonomies,
+ * and that the large-graph mode answers as the in-memory mode does on a
+ * generated one.
+ * 
+ * Usage: java WordNetCheck
+ * 
+ * @author Michael <GrubenM@GMail.com>
+ */
+public class WordNetCheck {
+    
+    // Not to be instantiated
+    private WordNetCheck() { }
+    
+    /**
+     * Writes the given lines to a new temporary file.
+     * 
+     * @param lines The lines to write
+     * @return the name of the file
+     */
+    private static String write(String... lines) {
+        try {
+            File f = File.createTempFile("wordnet", ".txt");
+            f.deleteOnExit();
+            Out out = new Out(f.getPath());
+            for (String line: lines) out.println(line);
+            out.close();
+            return f.getPath();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Does WordNet accept the given synsets and hypernyms as a rooted DAG?
+     * 
+     * @param synsets The name of the synsets file
+     * @param hypernyms The name of the hypernyms file
+     * @return {@code true} if construction succeeds, {@code false} if it
+     *         throws IllegalArgumentException
+     */
+    private static boolean accepts(String synsets, String hypernyms) {
+        try {
+            new WordNet(synsets, hypernyms);
+            return true;
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Throws unless the given condition holds.
+     * 
+     * @param ok The condition
+     * @param what What was being checked
+     */
+    private static void expect(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException(what);
+    }
+    
+    /**
+     * Collects the given nouns into a set.
+     * 
+     * @param nouns The nouns
+     * @return the set of <em>nouns</em>
+     */
+    private static Set<String> set(Iterable<String> nouns) {
+        Set<String> s = new HashSet<>();
+        for (String n: nouns) s.add(n);
+        return s;
+    }
+    
+    /**
+     * Compares the large-graph mode with the in-memory mode on a generated
+     * taxonomy, by way of random queries.
+     * 
+     * @param V The number of synsets
+     * @param queries The number of queries
+     */
+    private static void compareModes(int V, int queries) {
+        try {
+            File dir = Files.createTempDirectory("wordnet").toFile();
+            String syn = dir + "/synsets.txt";
+            String hyp = dir + "/hypernyms.txt";
+            TaxonomyGenerator.write(V, 1, syn, hyp);
+            WordNet heap = new WordNet(syn, hyp);
+            WordNet mapped = new WordNet(syn, hyp, dir.getPath());
+            expect(set(heap.nouns()).equals(set(mapped.nouns())), "nouns");
+            expect(!mapped.isNoun("n" + V) && !mapped.isNoun("s"),
+                   "isNoun of non-nouns");
+            
+            StdRandom.setSeed(1);
+            for (int q = 0; q < queries; q++) {
+                String a = StdRandom.uniform(2) == 0
+                         ? "n" + StdRandom.uniform(V)
+                         : "s" + StdRandom.uniform((V + 99) / 100);
+                String b = "n" + StdRandom.uniform(V);
+                expect(mapped.isNoun(a) && mapped.isNoun(b), "isNoun " + a);
+                expect(heap.distance(a, b) == mapped.distance(a, b),
+                       "distance " + a + " " + b);
+                expect(heap.sap(a, b).equals(mapped.sap(a, b)),
+                       "sap " + a + " " + b);
+                int[] dh = heap.distances(a, new String[] { b, a });
+                int[] dm = mapped.distances(a, new String[] { b, a });
+                expect(dh[0] == dm[0] && dh[1] == dm[1],
+                       "distances " + a + " " + b);
+            }
+            for (File f: dir.listFiles()) f.delete();
+            dir.delete();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    public static void main(String[] args) {
+        String syn = write("0,entity,x", "1,animal beast,x", "2,dog,x",
+                           "3,cat,x", "4,rock stone,x");
+        String hyp = write("1,0", "2,1", "3,1", "4,0");
+        WordNet wn = new WordNet(syn, hyp);
+        expect(wn.distance("dog", "cat") == 2, "distance dog cat");
+        expect(wn.distance("dog", "rock") == 3, "distance dog rock");
+        expect(wn.sap("dog", "stone").equals("entity"), "sap dog stone");
+        int[] ds = wn.distances("dog", new String[] { "cat", "beast", "dog" });
+        expect(ds[0] == 2 && ds[1] == 1 && ds[2] == 0, "distances");
+        
+        // A root with several nouns is still a single root
+        expect(accepts(write("0,entity thing,x", "1,dog,x"), write("1,0")),
+               "multi-noun root");
+        
+        // Two synsets without hypernyms are two roots
+        expect(!accepts(write("0,entity,x", "1,dog,x"), write("")),
+               "two roots");
+        
+        // An id missing from the synsets file is not a root
+        expect(accepts(write("0,entity,x", "2,dog,x"), write("2,0")),
+               "missing id");
+        
+        // A cycle is not a DAG
+        expect(!accepts(write("0,entity,x", "1,dog,x", "2,cat,x"),
+                        write("1,2", "2,1")), "cycle");
+        
+        // The large-graph mode agrees with the in-memory mode
+        compareModes(20000, 2000);
+        
+        StdOut.println("WordNet ok");
+    }
+}